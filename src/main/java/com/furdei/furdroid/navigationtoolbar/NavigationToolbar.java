@@ -10,17 +10,24 @@ import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.AttributeSet;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 import android.widget.PopupMenu;
 
+import com.furdei.furdroid.navigationtoolbar.internal.NavigationClickDispatcher;
 import com.furdei.furdroid.navigationtoolbar.internal.NavigationHolder;
 import com.furdei.furdroid.navigationtoolbar.internal.NavigationItemClickListener;
 import com.furdei.furdroid.navigationtoolbar.internal.NavigationItemInflater;
+import com.furdei.furdroid.navigationtoolbar.internal.PaletteUtils;
+
+import java.util.ArrayList;
 
 /**
  * <p>
@@ -73,6 +80,20 @@ import com.furdei.furdroid.navigationtoolbar.internal.NavigationItemInflater;
  * Overflow button. This is the default behaviour, but you can change it by calling
  * {@link OptionsMenuNavigationToolbarListener#setClickHomeUpForOverflowButton(boolean)}
  * method.
+ * </p><p>
+ * Rapid repeated taps on the same button can be coalesced by calling
+ * {@link #setClickCoalescingInterval(long)}. Call {@link #setDispatchOnNextFrame(boolean)}
+ * to deliver navigation events on the next animation frame so that the ripple starts before
+ * your listener runs.
+ * </p>
+ * <h3>Sharing navigation state</h3>
+ * <p>
+ * If you host a toolbar per fragment or per ViewPager page, bind them all to one
+ * {@link NavigationToolbarController} by calling {@link #setController}. The controller parses
+ * the menu once, keeps one palette and one selected item and updates only the toolbars
+ * which are on the screen. Toolbars scrolled out of view, e.g. on off-screen ViewPager pages,
+ * catch up when scrolled back. Bound toolbars release their item views when detached from
+ * a window.
  * </p>
  *
  * @author Stepan Furdey
@@ -93,15 +114,44 @@ public class NavigationToolbar extends FrameLayout {
     }
 
     private static final int TRANSPARENT_COLOR_MASK = 0x00FFFFFF;
+    private static final int DEFAULT_CHILD_GRAVITY = Gravity.TOP | Gravity.LEFT;
 
     private int menuResId;
     private Drawable shadowDrawable;
     private int actionBarWidth;
     private int shadowWidth;
+    private boolean fixedSizeRail;
+    private final ArrayList<View> matchParentChildren = new ArrayList<View>(1);
     private ColorStateList iconColor;
     private ColorStateList backgroundColor;
     private NavigationHolder navigationView;
     private NavigationToolbarListener navigationToolbarListener;
+    private NavigationToolbarController controller;
+    private int syncedVersion;
+    private int syncedSelectedItemId = NO_ID;
+    private ColorStateList ownIconColor;
+    private ColorStateList ownBackgroundColor;
+    private final Rect visibleRect = new Rect();
+
+    /**
+     * Catches up with the controller when the toolbar is scrolled into view, e.g. as a ViewPager
+     * page, or laid out for the first time
+     */
+    private final ViewTreeObserver.OnScrollChangedListener syncOnScroll =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    syncIfOnScreen();
+                }
+            };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener syncOnLayout =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    syncIfOnScreen();
+                }
+            };
 
     private NavigationItemClickListener.NavigationClickListener navigationClickListener =
             new NavigationItemClickListener.NavigationClickListener() {
@@ -113,6 +163,9 @@ public class NavigationToolbar extends FrameLayout {
                 }
             };
 
+    private NavigationClickDispatcher navigationClickDispatcher =
+            new NavigationClickDispatcher(this, navigationClickListener);
+
     public NavigationToolbar(Context context) {
         super(context);
         init(null, R.attr.navigationToolbarStyle, R.style.Widget_NavigationToolbar);
@@ -169,7 +222,7 @@ public class NavigationToolbar extends FrameLayout {
     }
 
     public int getMenuResId() {
-        return menuResId;
+        return controller != null ? controller.getMenuResId() : menuResId;
     }
 
     /**
@@ -180,9 +233,66 @@ public class NavigationToolbar extends FrameLayout {
      * @param menuResId menu resource to inflate navigation items
      */
     public void setMenuResId(int menuResId) {
+        if (controller != null) {
+            controller.setMenuResId(menuResId);
+            return;
+        }
+
         this.menuResId = menuResId;
         removeMenuViews();
-        inflateMenu(menuResId);
+        populateMenu(createMenu(getContext(), menuResId));
+    }
+
+    /**
+     * Returns a controller holding navigation state shared with other toolbars or
+     * <code>null</code> if this toolbar is not bound to any
+     */
+    public NavigationToolbarController getController() {
+        return controller;
+    }
+
+    /**
+     * <p>
+     * Bind this toolbar to a controller shared with other toolbars. Menu, colors and selected
+     * item are taken from the controller from now on, and calling {@link #setMenuResId(int)},
+     * {@link #setIconColor(ColorStateList)} or {@link #setBackgroundColor(ColorStateList)}
+     * changes them for all the bound toolbars. Pass <code>null</code> to unbind, the toolbar
+     * then gets its own menu and colors back.
+     * </p><p>
+     * A bound toolbar creates its item views only while it is attached to a window and releases
+     * them when detached. Changes of the controller reach only the toolbars which are on
+     * the screen. Off-screen ViewPager pages kept by the pager hold their item views, but they
+     * are brought up to date only when scrolled into view.
+     * A menu specified by a <code>navigationToolbarMenu</code> XML property is inflated before
+     * the toolbar can be bound, so don't specify it for toolbars you are going to bind.
+     * </p>
+     *
+     * @param controller controller to bind to or <code>null</code>
+     */
+    public void setController(NavigationToolbarController controller) {
+        boolean wasBound = this.controller != null;
+
+        if (wasBound) {
+            this.controller.unbind(this);
+        } else if (controller != null) {
+            ownIconColor = iconColor;
+            ownBackgroundColor = backgroundColor;
+        }
+
+        this.controller = controller;
+        syncedVersion = -1;
+
+        if (controller != null) {
+            controller.bind(this);
+
+            if (isShown()) {
+                syncWithController();
+            } else {
+                removeMenuViews();
+            }
+        } else if (wasBound) {
+            restoreOwnMenu();
+        }
     }
 
     /**
@@ -200,6 +310,49 @@ public class NavigationToolbar extends FrameLayout {
         return navigationView;
     }
 
+    /**
+     * Returns <code>true</code> if navigation items changes are animated
+     */
+    public boolean isAnimateItemChanges() {
+        return navigationView.isAnimateItemChanges();
+    }
+
+    /**
+     * Turn on or off animation of navigation items appearing, disappearing or moving into
+     * overflow. Items are faded and slid to their new places without additional layout passes.
+     * You can also use a <code>navigationToolbarAnimateItemChanges</code> XML property.
+     * Animation is off by default.
+     */
+    public void setAnimateItemChanges(boolean animateItemChanges) {
+        navigationView.setAnimateItemChanges(animateItemChanges);
+    }
+
+    /**
+     * Returns <code>true</code> if the navigation bar is treated as a fixed size layout boundary
+     */
+    public boolean isFixedSizeRail() {
+        return fixedSizeRail;
+    }
+
+    /**
+     * <p>
+     * Turn on or off fixed size mode for the navigation bar. The bar has a fixed width and
+     * follows the height of the toolbar, so in this mode its layout is isolated from
+     * the content: content layout requests do not measure navigation items and changes of
+     * navigation items do not measure and lay out the content. This is useful if your content
+     * is deep or lays out frequently.
+     * </p><p>
+     * Content is measured to fit the space to the right of the navigation bar in this mode.
+     * You can also use a <code>navigationToolbarFixedSizeRail</code> XML property.
+     * The mode is off by default.
+     * </p>
+     */
+    public void setFixedSizeRail(boolean fixedSizeRail) {
+        this.fixedSizeRail = fixedSizeRail;
+        navigationView.setLayoutIsolated(fixedSizeRail);
+        requestLayout();
+    }
+
     /**
      * Returns a current listener for navigation toolbar events
      */
@@ -222,6 +375,42 @@ public class NavigationToolbar extends FrameLayout {
         this.navigationToolbarListener = navigationToolbarListener;
     }
 
+    /**
+     * Interval in milliseconds during which repeated clicks on the same navigation item
+     * are ignored
+     */
+    public long getClickCoalescingInterval() {
+        return navigationClickDispatcher.getCoalescingInterval();
+    }
+
+    /**
+     * Specify an interval in milliseconds during which repeated clicks on the same navigation
+     * item are ignored. This prevents launching the same destination twice when user taps
+     * a button rapidly. Zero means every click is delivered, this is the default.
+     *
+     * @param clickCoalescingInterval interval in milliseconds
+     */
+    public void setClickCoalescingInterval(long clickCoalescingInterval) {
+        navigationClickDispatcher.setCoalescingInterval(clickCoalescingInterval);
+    }
+
+    /**
+     * Returns <code>true</code> if navigation events are delivered on the next animation frame
+     */
+    public boolean isDispatchOnNextFrame() {
+        return navigationClickDispatcher.isDispatchOnNextFrame();
+    }
+
+    /**
+     * When set to <code>true</code> navigation events are delivered to a
+     * {@link NavigationToolbarListener} on the next animation frame rather than immediately.
+     * This lets the pressed state and the ripple start before heavy listener work runs.
+     * The default is <code>false</code>.
+     */
+    public void setDispatchOnNextFrame(boolean dispatchOnNextFrame) {
+        navigationClickDispatcher.setDispatchOnNextFrame(dispatchOnNextFrame);
+    }
+
     /**
      * Colors used to tint navigation icons depending on their state
      */
@@ -235,6 +424,11 @@ public class NavigationToolbar extends FrameLayout {
      * {@link #setMenuResId(int)} method so make sure to call it before.
      */
     public void setIconColor(ColorStateList iconColor) {
+        if (controller != null) {
+            controller.setIconColor(iconColor);
+            return;
+        }
+
         this.iconColor = iconColor;
         navigationView.setIconColor(iconColor);
     }
@@ -252,21 +446,150 @@ public class NavigationToolbar extends FrameLayout {
      * {@link #setMenuResId(int)} method so make sure to call it before.
      */
     public void setBackgroundColor(ColorStateList backgroundColor) {
+        if (controller != null) {
+            controller.setBackgroundColor(backgroundColor);
+            return;
+        }
+
         this.backgroundColor = backgroundColor;
         navigationView.setBackgroundColor(backgroundColor);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!fixedSizeRail) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        final int count = getChildCount();
+        final boolean measureMatchParentChildren =
+                MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY ||
+                MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY;
+        int maxWidth = 0;
+        int maxHeight = 0;
+        matchParentChildren.clear();
+
+        // measure content only, the navigation bar doesn't affect the size of the toolbar
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+
+            if (child == navigationView || child.getVisibility() == GONE) {
+                continue;
+            }
+
+            measureChildWithMargins(child, widthMeasureSpec, actionBarWidth,
+                    heightMeasureSpec, 0);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            maxWidth = Math.max(maxWidth,
+                    child.getMeasuredWidth() + lp.leftMargin + lp.rightMargin);
+            maxHeight = Math.max(maxHeight,
+                    child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin);
+
+            if (measureMatchParentChildren && (lp.width == LayoutParams.MATCH_PARENT
+                    || lp.height == LayoutParams.MATCH_PARENT)) {
+                matchParentChildren.add(child);
+            }
+        }
+
+        maxWidth += actionBarWidth + getPaddingLeft() + getPaddingRight();
+        maxHeight += getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(
+                resolveSize(Math.max(maxWidth, getSuggestedMinimumWidth()), widthMeasureSpec),
+                resolveSize(Math.max(maxHeight, getSuggestedMinimumHeight()), heightMeasureSpec));
+
+        final int width = getMeasuredWidth();
+        final int height = getMeasuredHeight();
+
+        // a single match parent child has already got all the space it can, as in FrameLayout
+        final int matchParentCount = matchParentChildren.size();
+
+        if (matchParentCount > 1) {
+            for (int i = 0; i < matchParentCount; i++) {
+                measureChildWithMargins(matchParentChildren.get(i),
+                        MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                        actionBarWidth,
+                        MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY), 0);
+            }
+        }
+
+        matchParentChildren.clear();
+
+        // the navigation bar is measured only when its own size changes or its items have
+        // requested a layout
+        if (navigationView.isLayoutRequested()
+                || navigationView.getMeasuredWidth() != actionBarWidth
+                || navigationView.getMeasuredHeight() != height) {
+            navigationView.measure(
+                    MeasureSpec.makeMeasureSpec(actionBarWidth, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        ViewTreeObserver viewTreeObserver = getViewTreeObserver();
+        viewTreeObserver.addOnScrollChangedListener(syncOnScroll);
+        viewTreeObserver.addOnGlobalLayoutListener(syncOnLayout);
+
+        if (controller != null && isShown()) {
+            // the toolbar is not laid out yet, so item views are created even if it turns out
+            // to be off the screen
+            syncWithController();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        if (controller != null && isShown()) {
+            syncWithController();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    protected void onDetachedFromWindow() {
+        navigationClickDispatcher.cancelPending();
+
+        ViewTreeObserver viewTreeObserver = getViewTreeObserver();
+        viewTreeObserver.removeOnScrollChangedListener(syncOnScroll);
+        // removeOnGlobalLayoutListener is not available before Jelly Bean
+        viewTreeObserver.removeGlobalOnLayoutListener(syncOnLayout);
+
+        if (controller != null) {
+            // item views of a bound toolbar are rebuilt from the controller when attached again
+            removeMenuViews();
+            syncedVersion = -1;
+        }
+
+        super.onDetachedFromWindow();
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
-        setPadding(getPaddingLeft() + actionBarWidth, getPaddingTop(),
-                getPaddingRight(), getPaddingBottom());
-        super.onLayout(changed, left, top, right, bottom);
-        setPadding(getPaddingLeft() - actionBarWidth, getPaddingTop(),
-                getPaddingRight(), getPaddingBottom());
-        navigationView.layout(left, top, left + actionBarWidth, bottom);
+        // Content is laid out to the right of the navigation bar. We don't shift padding and
+        // call super.onLayout here because setPadding requests another layout pass every time.
+        layoutContent(right - left, bottom - top);
+        navigationView.layout(0, 0, actionBarWidth, bottom - top);
 
         if (shadowDrawable != null) {
             int localShadowWidth = shadowWidth;
@@ -280,6 +603,70 @@ public class NavigationToolbar extends FrameLayout {
         }
     }
 
+    /**
+     * Lay out all children except the navigation bar the same way {@link FrameLayout} does,
+     * but leaving space for the navigation bar on the left
+     */
+    private void layoutContent(int width, int height) {
+        final int count = getChildCount();
+        final int parentLeft = getPaddingLeft() + actionBarWidth;
+        final int parentRight = width - getPaddingRight();
+        final int parentTop = getPaddingTop();
+        final int parentBottom = height - getPaddingBottom();
+        final int layoutDirection = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                ? getLayoutDirection() : 0;
+
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+
+            if (child == navigationView || child.getVisibility() == GONE) {
+                continue;
+            }
+
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            final int childWidth = child.getMeasuredWidth();
+            final int childHeight = child.getMeasuredHeight();
+            int gravity = lp.gravity;
+
+            if (gravity == -1) {
+                gravity = DEFAULT_CHILD_GRAVITY;
+            }
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                gravity = Gravity.getAbsoluteGravity(gravity, layoutDirection);
+            }
+
+            int childLeft;
+            int childTop;
+
+            switch (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+                case Gravity.CENTER_HORIZONTAL:
+                    childLeft = parentLeft + (parentRight - parentLeft - childWidth) / 2
+                            + lp.leftMargin - lp.rightMargin;
+                    break;
+                case Gravity.RIGHT:
+                    childLeft = parentRight - childWidth - lp.rightMargin;
+                    break;
+                default:
+                    childLeft = parentLeft + lp.leftMargin;
+            }
+
+            switch (gravity & Gravity.VERTICAL_GRAVITY_MASK) {
+                case Gravity.CENTER_VERTICAL:
+                    childTop = parentTop + (parentBottom - parentTop - childHeight) / 2
+                            + lp.topMargin - lp.bottomMargin;
+                    break;
+                case Gravity.BOTTOM:
+                    childTop = parentBottom - childHeight - lp.bottomMargin;
+                    break;
+                default:
+                    childTop = parentTop + lp.topMargin;
+            }
+
+            child.layout(childLeft, childTop, childLeft + childWidth, childTop + childHeight);
+        }
+    }
+
     /**
      * Called in constructors. Initialize the component
      */
@@ -287,6 +674,7 @@ public class NavigationToolbar extends FrameLayout {
         setWillNotDraw(false);
 
         navigationView = new NavigationHolder(getContext());
+        navigationView.setNavigationClickListener(navigationClickDispatcher);
         addView(navigationView);
 
         TypedArray typedArray = getContext().obtainStyledAttributes(attrs,
@@ -306,17 +694,21 @@ public class NavigationToolbar extends FrameLayout {
                 R.styleable.NavigationToolbar_navigationToolbarColorAccent, 0);
         int menuResId = typedArray.getResourceId(
                 R.styleable.NavigationToolbar_navigationToolbarMenu, 0);
+        boolean animateItemChanges = typedArray.getBoolean(
+                R.styleable.NavigationToolbar_navigationToolbarAnimateItemChanges, false);
+        boolean fixedSizeRail = typedArray.getBoolean(
+                R.styleable.NavigationToolbar_navigationToolbarFixedSizeRail, false);
         typedArray.recycle();
 
-        int[][] states = new int[][] {{ android.R.attr.state_pressed }, {}};
-        int[] iconColors = new int[] { primaryColorDark, primaryColor };
-        int[] backgroundColors = new int[] { accentColor, accentColor & TRANSPARENT_COLOR_MASK };
-        iconColor = new ColorStateList(states, iconColors);
-        backgroundColor = new ColorStateList(states, backgroundColors);
+        iconColor = PaletteUtils.getPressedColorState(primaryColorDark, primaryColor);
+        backgroundColor = PaletteUtils.getPressedColorState(accentColor,
+                accentColor & TRANSPARENT_COLOR_MASK);
         navigationView.setIconColor(iconColor);
         navigationView.setBackgroundColor(backgroundColor);
 
         setShadowDrawable(shadowDrawable);
+        setAnimateItemChanges(animateItemChanges);
+        setFixedSizeRail(fixedSizeRail);
         setNavigationToolbarListener(
                 new OptionsMenuNavigationToolbarListener((Activity) getContext()));
 
@@ -325,21 +717,94 @@ public class NavigationToolbar extends FrameLayout {
         }
     }
 
+    /**
+     * Apply the state of the controller to this toolbar. Item views are rebuilt only if the menu
+     * or the palette has changed since the last call.
+     */
+    void syncWithController() {
+        syncedSelectedItemId = controller.getSelectedItemId();
+
+        if (syncedVersion != controller.getVersion()) {
+            syncedVersion = controller.getVersion();
+
+            if (iconColor != controller.getIconColor()) {
+                iconColor = controller.getIconColor();
+                navigationView.setIconColor(iconColor);
+            }
+
+            if (backgroundColor != controller.getBackgroundColor()) {
+                backgroundColor = controller.getBackgroundColor();
+                navigationView.setBackgroundColor(backgroundColor);
+            }
+
+            removeMenuViews();
+
+            if (controller.getMenu() != null) {
+                populateMenu(controller.getMenu());
+            }
+        }
+
+        navigationView.setSelectedItemId(syncedSelectedItemId);
+    }
+
+    /**
+     * Returns <code>true</code> if at least a part of the toolbar is on the screen. Unlike
+     * {@link #isShown()} this is <code>false</code> for toolbars scrolled out of their parents,
+     * e.g. on off-screen ViewPager pages.
+     */
+    boolean isOnScreen() {
+        return isShown() && getGlobalVisibleRect(visibleRect);
+    }
+
+    private void syncIfOnScreen() {
+        if (controller != null && (syncedVersion != controller.getVersion()
+                || syncedSelectedItemId != controller.getSelectedItemId()) && isOnScreen()) {
+            syncWithController();
+        }
+    }
+
+    /**
+     * Get back own menu and colors of the toolbar after unbinding from a controller
+     */
+    private void restoreOwnMenu() {
+        if (iconColor != ownIconColor) {
+            iconColor = ownIconColor;
+            navigationView.setIconColor(iconColor);
+        }
+
+        if (backgroundColor != ownBackgroundColor) {
+            backgroundColor = ownBackgroundColor;
+            navigationView.setBackgroundColor(backgroundColor);
+        }
+
+        removeMenuViews();
+
+        if (menuResId != 0) {
+            populateMenu(createMenu(getContext(), menuResId));
+        }
+    }
+
     /**
      * Inflate a menu from resource
      */
-    private void inflateMenu(int menuResId) {
-        PopupMenu popupMenu = new PopupMenu(getContext(), null);
+    static Menu createMenu(Context context, int menuResId) {
+        PopupMenu popupMenu = new PopupMenu(context, null);
         Menu menu = popupMenu.getMenu();
 
-        MenuInflater menuInflater = new MenuInflater(getContext());
+        MenuInflater menuInflater = new MenuInflater(context);
         menuInflater.inflate(menuResId, menu);
+        return menu;
+    }
 
+    /**
+     * Create navigation item views for menu items
+     */
+    private void populateMenu(Menu menu) {
         LayoutInflater layoutInflater = (LayoutInflater) getContext()
                 .getSystemService(Context.LAYOUT_INFLATER_SERVICE);
 
         NavigationItemInflater navigationItemInflater = new NavigationItemInflater(layoutInflater,
-                navigationView, R.layout.navigation_item, navigationClickListener,
+                navigationView, R.layout.navigation_item, navigationClickDispatcher,
                 iconColor, backgroundColor);
 
         int itemsCount = menu.size();
@@ -0,0 +1,187 @@
+package com.furdei.furdroid.navigationtoolbar;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Menu;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * Navigation state shared by several {@link NavigationToolbar} instances, for example when
+ * each fragment or each ViewPager page hosts its own toolbar. The controller parses a menu
+ * once and holds one palette and one selected item for all the toolbars bound to it by
+ * {@link NavigationToolbar#setController(NavigationToolbarController)}.
+ * </p><p>
+ * Changes are collected and pushed to the bound toolbars in one pass on the next message loop
+ * iteration. Only toolbars on the screen are updated, the others catch up when they are
+ * shown or scrolled into view again. Toolbars detached from a window hold no item views at all.
+ * </p>
+ *
+ * @author Stepan Furdey
+ */
+public class NavigationToolbarController {
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ArrayList<WeakReference<NavigationToolbar>> toolbars =
+            new ArrayList<WeakReference<NavigationToolbar>>();
+    private int menuResId;
+    private Menu menu;
+    private ColorStateList iconColor;
+    private ColorStateList backgroundColor;
+    private int selectedItemId = View.NO_ID;
+    private int version;
+    private boolean syncScheduled;
+
+    private final Runnable syncToolbars = new Runnable() {
+        @Override
+        public void run() {
+            syncScheduled = false;
+
+            for (int i = toolbars.size() - 1; i >= 0; i--) {
+                NavigationToolbar toolbar = toolbars.get(i).get();
+
+                if (toolbar == null) {
+                    toolbars.remove(i);
+                } else if (toolbar.isOnScreen()) {
+                    toolbar.syncWithController();
+                }
+            }
+        }
+    };
+
+    /**
+     * @param context any context, only its application context is kept, so the controller
+     *                may outlive an activity
+     */
+    public NavigationToolbarController(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public int getMenuResId() {
+        return menuResId;
+    }
+
+    /**
+     * Specify a menu resource to inflate navigation items for all bound toolbars. The menu is
+     * parsed here once and its items are shared by the toolbars.
+     *
+     * @param menuResId menu resource to inflate navigation items
+     */
+    public void setMenuResId(int menuResId) {
+        this.menuResId = menuResId;
+        this.menu = menuResId != 0 ? NavigationToolbar.createMenu(context, menuResId) : null;
+        notifyModelChanged();
+    }
+
+    /**
+     * Returns a menu shared by the bound toolbars or <code>null</code> if no menu has been
+     * specified yet
+     */
+    public Menu getMenu() {
+        return menu;
+    }
+
+    /**
+     * Colors used to tint navigation icons depending on their state
+     */
+    public ColorStateList getIconColor() {
+        return iconColor;
+    }
+
+    /**
+     * Specify colors used to tint navigation icons of all bound toolbars
+     */
+    public void setIconColor(ColorStateList iconColor) {
+        this.iconColor = iconColor;
+        notifyModelChanged();
+    }
+
+    /**
+     * Colors used for ripple effect for navigation icons
+     */
+    public ColorStateList getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    /**
+     * Specify colors used for ripple effect for navigation icons of all bound toolbars
+     */
+    public void setBackgroundColor(ColorStateList backgroundColor) {
+        this.backgroundColor = backgroundColor;
+        notifyModelChanged();
+    }
+
+    public int getSelectedItemId() {
+        return selectedItemId;
+    }
+
+    /**
+     * Mark a navigation item as selected in all bound toolbars. Selected item views are in
+     * {@link android.R.attr#state_selected} state, so the palette can highlight them.
+     *
+     * @param selectedItemId menu item id or {@link View#NO_ID} to clear selection
+     */
+    public void setSelectedItemId(int selectedItemId) {
+        this.selectedItemId = selectedItemId;
+        scheduleSync();
+    }
+
+    /**
+     * Called by a toolbar being bound to this controller
+     */
+    void bind(NavigationToolbar toolbar) {
+        // adopt the colors of the first toolbar which are not specified yet, so that all
+        // the toolbars look the same
+        if (iconColor == null) {
+            iconColor = toolbar.getIconColor();
+            version++;
+        }
+
+        if (backgroundColor == null) {
+            backgroundColor = toolbar.getBackgroundColor();
+            version++;
+        }
+
+        toolbars.add(new WeakReference<NavigationToolbar>(toolbar));
+    }
+
+    /**
+     * Called by a toolbar being unbound from this controller
+     */
+    void unbind(NavigationToolbar toolbar) {
+        for (int i = toolbars.size() - 1; i >= 0; i--) {
+            NavigationToolbar boundToolbar = toolbars.get(i).get();
+
+            if (boundToolbar == null || boundToolbar == toolbar) {
+                toolbars.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Model version is changed each time the menu or the palette is replaced, so the toolbars
+     * know when they have to rebuild their item views
+     */
+    int getVersion() {
+        return version;
+    }
+
+    private void notifyModelChanged() {
+        version++;
+        scheduleSync();
+    }
+
+    private void scheduleSync() {
+        if (!syncScheduled) {
+            syncScheduled = true;
+            handler.post(syncToolbars);
+        }
+    }
+
+}
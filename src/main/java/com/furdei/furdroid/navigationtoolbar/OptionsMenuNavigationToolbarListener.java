@@ -1,10 +1,11 @@
 package com.furdei.furdroid.navigationtoolbar;
 
 import android.app.Activity;
-import android.os.Build;
 import android.view.MenuItem;
 import android.view.View;
 
+import com.furdei.furdroid.navigationtoolbar.internal.HomeUpViewCache;
+
 import java.lang.ref.WeakReference;
 
 /**
@@ -25,6 +26,7 @@ public class OptionsMenuNavigationToolbarListener implements NavigationToolbar.N
 
     private WeakReference<Activity> activity;
     private boolean clickHomeUpForOverflowButton;
+    private final HomeUpViewCache homeUpViewCache = new HomeUpViewCache();
 
     public OptionsMenuNavigationToolbarListener(Activity activity) {
         setActivity(activity);
@@ -37,6 +39,7 @@ public class OptionsMenuNavigationToolbarListener implements NavigationToolbar.N
 
     public void setActivity(Activity activity) {
         this.activity = new WeakReference<Activity>(activity);
+        homeUpViewCache.invalidate();
     }
 
     public boolean isClickHomeUpForOverflowButton() {
@@ -59,13 +62,7 @@ public class OptionsMenuNavigationToolbarListener implements NavigationToolbar.N
 
             // try to click Home/Up button if user clicked Overflow navigation button
             if (clickHomeUpForOverflowButton && menuItem.getItemId() == R.id.overflow) {
-                View home;
-
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                    home = activity.getWindow().getDecorView().findViewById(android.R.id.home);
-                } else {
-                    home = activity.getWindow().getDecorView().findViewById(R.id.up);
-                }
+                View home = homeUpViewCache.getHomeUpView(activity);
 
                 if (home != null) {
                     home.performClick();
@@ -0,0 +1,71 @@
+package com.furdei.furdroid.navigationtoolbar.internal;
+
+import android.app.Activity;
+import android.os.Build;
+import android.view.View;
+
+import com.furdei.furdroid.navigationtoolbar.R;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Remembers the Home/Up view of an activity so that the decor view tree is not searched on
+ * every Overflow button click. The view is held weakly and looked up again as soon as it is
+ * detached from the decor view, e.g. after the action bar has been recreated. A failed lookup
+ * is remembered too, so activities without Home/Up view are searched once per decor view.
+ *
+ * @author Stepan Furdey
+ */
+public class HomeUpViewCache {
+
+    private WeakReference<View> homeView;
+    private WeakReference<View> searchedDecorView;
+
+    /**
+     * Returns Home/Up view of the activity or <code>null</code> if the activity has no one
+     */
+    public View getHomeUpView(Activity activity) {
+        View decorView = activity.getWindow().getDecorView();
+        View home = homeView != null ? homeView.get() : null;
+
+        if (home != null && isValid(home, decorView)) {
+            return home;
+        }
+
+        if (homeView == null && searchedDecorView != null
+                && searchedDecorView.get() == decorView) {
+            // this decor view has already been searched and has no Home/Up view
+            return null;
+        }
+
+        home = decorView.findViewById(getHomeUpViewId());
+        homeView = home != null ? new WeakReference<View>(home) : null;
+        searchedDecorView = new WeakReference<View>(decorView);
+
+        return home;
+    }
+
+    /**
+     * Forget a cached view. Next call to {@link #getHomeUpView(Activity)} will search
+     * the decor view again.
+     */
+    public void invalidate() {
+        homeView = null;
+        searchedDecorView = null;
+    }
+
+    private static boolean isValid(View home, View decorView) {
+        return home.getId() == getHomeUpViewId()
+                && home.getWindowToken() != null
+                && home.getRootView() == decorView;
+    }
+
+    private static int getHomeUpViewId() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            return android.R.id.home;
+        } else {
+            return R.id.up;
+        }
+    }
+
+}
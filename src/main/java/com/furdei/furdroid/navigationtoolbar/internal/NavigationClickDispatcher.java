@@ -0,0 +1,120 @@
+package com.furdei.furdroid.navigationtoolbar.internal;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.util.SparseArray;
+import android.view.MenuItem;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Dispatch stage between navigation buttons and a navigation listener. Drops repeated clicks
+ * on the same item within a coalescing interval and optionally delays the dispatch until the
+ * next animation frame so that the pressed state and the ripple are drawn before heavy
+ * listener work runs.
+ *
+ * @author Stepan Furdey
+ */
+public class NavigationClickDispatcher implements NavigationItemClickListener.NavigationClickListener {
+
+    private final View host;
+    private final NavigationItemClickListener.NavigationClickListener target;
+    private final SparseArray<long[]> lastDispatchTimes = new SparseArray<long[]>();
+    private final ArrayList<MenuItem> pendingItems = new ArrayList<MenuItem>();
+    private long coalescingInterval;
+    private boolean dispatchOnNextFrame;
+
+    private final Runnable dispatchPending = new Runnable() {
+        @Override
+        public void run() {
+            // listener may click other items while we are dispatching, these are added to the
+            // end of the list and dispatched in the same pass
+            try {
+                for (int i = 0; i < pendingItems.size(); i++) {
+                    target.onClick(pendingItems.get(i));
+                }
+            } finally {
+                // otherwise the dispatcher would never post again after a listener failure
+                pendingItems.clear();
+            }
+        }
+    };
+
+    public NavigationClickDispatcher(View host,
+                                     NavigationItemClickListener.NavigationClickListener target) {
+        this.host = host;
+        this.target = target;
+    }
+
+    public long getCoalescingInterval() {
+        return coalescingInterval;
+    }
+
+    /**
+     * Clicks on the same item which come sooner than <code>coalescingInterval</code>
+     * milliseconds after the previous dispatched one are ignored. Zero disables coalescing.
+     */
+    public void setCoalescingInterval(long coalescingInterval) {
+        this.coalescingInterval = coalescingInterval;
+    }
+
+    public boolean isDispatchOnNextFrame() {
+        return dispatchOnNextFrame;
+    }
+
+    public void setDispatchOnNextFrame(boolean dispatchOnNextFrame) {
+        this.dispatchOnNextFrame = dispatchOnNextFrame;
+    }
+
+    /**
+     * Drop all clicks that are waiting for the next frame
+     */
+    public void cancelPending() {
+        host.removeCallbacks(dispatchPending);
+        pendingItems.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onClick(MenuItem menuItem) {
+        if (menuItem == null || pendingItems.contains(menuItem) || isCoalesced(menuItem)) {
+            return;
+        }
+
+        if (dispatchOnNextFrame) {
+            if (pendingItems.isEmpty()) {
+                ViewCompat.postOnAnimation(host, dispatchPending);
+            }
+
+            pendingItems.add(menuItem);
+        } else {
+            target.onClick(menuItem);
+        }
+    }
+
+    /**
+     * Checks whether the item has been dispatched recently and remembers current click time
+     * otherwise
+     */
+    private boolean isCoalesced(MenuItem menuItem) {
+        if (coalescingInterval <= 0) {
+            return false;
+        }
+
+        long now = SystemClock.uptimeMillis();
+        long[] lastDispatchTime = lastDispatchTimes.get(menuItem.getItemId());
+
+        if (lastDispatchTime == null) {
+            lastDispatchTime = new long[1];
+            lastDispatchTimes.put(menuItem.getItemId(), lastDispatchTime);
+        } else if (now - lastDispatchTime[0] < coalescingInterval) {
+            return true;
+        }
+
+        lastDispatchTime[0] = now;
+        return false;
+    }
+}
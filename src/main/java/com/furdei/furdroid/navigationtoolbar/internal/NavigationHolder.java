@@ -1,16 +1,17 @@
 package com.furdei.furdroid.navigationtoolbar.internal;
 
 import android.annotation.TargetApi;
-import android.app.Activity;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.os.Build;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
@@ -31,6 +32,24 @@ public class NavigationHolder extends FrameLayout {
     private MenuItem menuItemOverflow;
     private ColorStateList iconColor;
     private ColorStateList backgroundColor;
+    private boolean animateItemChanges;
+    private long animationDuration;
+    private boolean layoutIsolated;
+    private boolean selfLayoutScheduled;
+
+    private final Runnable selfLayout = new Runnable() {
+        @Override
+        public void run() {
+            selfLayoutScheduled = false;
+
+            if (isLayoutRequested() && getParent() != null && !getParent().isLayoutRequested()) {
+                measure(MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY),
+                        MeasureSpec.makeMeasureSpec(getHeight(), MeasureSpec.EXACTLY));
+                layout(getLeft(), getTop(), getRight(), getBottom());
+                invalidate();
+            }
+        }
+    };
 
     private static final int OVERFLOW_VIEW_INDEX = 0;
     private static final int FIRST_ACTION_VIEW_INDEX = 1;
@@ -60,9 +79,24 @@ public class NavigationHolder extends FrameLayout {
      * {@inheritDoc}
      */
     @Override
-    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
-        super.onLayout(changed, left, top, right, bottom);
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        // hidden items are kept INVISIBLE when animation is on, switching them from GONE later
+        // would request another layout pass
+        if (animateItemChanges && child.getVisibility() == GONE) {
+            child.setVisibility(INVISIBLE);
+        }
 
+        super.addView(child, index, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        // Children are laid out below, one by one. We don't call super.onLayout because it would
+        // move every child to the top of the bar and we need their previous positions to
+        // animate item changes.
         final int count = getChildCount();
 
         if (count <= 0) {
@@ -77,55 +111,141 @@ public class NavigationHolder extends FrameLayout {
         int parentTop = getPaddingTop();
         int parentBottom = bottom - top - getPaddingBottom();
         int freeSpace = parentBottom - parentTop;
-        boolean parentHasFreeSpace = true;
+        int overflowViewHeight = 0;
+        int firstHiddenIndex = count;
 
+        // First find out which children fit into the bar. Visibility of every child is changed
+        // only once afterwards, otherwise showing and hiding the same child in a single pass
+        // would request another layout each time.
         for (int i = FIRST_ACTION_VIEW_INDEX; i < count; i++) {
             final View child = getChildAt(i);
             final MenuItem menuItem = (MenuItem) child.getTag();
 
-            if (menuItem != null && menuItem.isVisible() && parentHasFreeSpace) {
-                final int height = child.getMeasuredHeight();
-                int childBottom = parentTop + height;
-                freeSpace -= height;
-
-                if (freeSpace >= 0) {
-                    child.setVisibility(VISIBLE);
-                    child.layout(leftPos, parentTop, rightPos, childBottom);
-                    parentTop += height;
-                } else {
-                    parentHasFreeSpace = false;
+            if (menuItem != null && menuItem.isVisible()) {
+                freeSpace -= child.getMeasuredHeight();
+
+                if (freeSpace < 0) {
                     measureChild(overflowView,
                             MeasureSpec.makeMeasureSpec(right - left, MeasureSpec.EXACTLY),
                             MeasureSpec.makeMeasureSpec(bottom - top, MeasureSpec.EXACTLY));
-                    int overflowViewHeight = overflowView.getMeasuredHeight();
+                    overflowViewHeight = overflowView.getMeasuredHeight();
 
                     // hide all children starting from current and backwards until we have enough
                     // space to fit an overflow view into the bar.
-                    for (int j = i;
-                         j >= FIRST_ACTION_VIEW_INDEX && freeSpace < overflowViewHeight;
-                         j--) {
-                        final View viewToHide = getChildAt(j);
-                        final MenuItem menuItemToHide = (MenuItem) viewToHide.getTag();
-
-                        if (menuItemToHide.isVisible()) {
-                            int hideHeight = viewToHide.getMeasuredHeight();
-                            freeSpace += hideHeight;
-                            viewToHide.setVisibility(GONE);
+                    int j = i;
+
+                    for (; j >= FIRST_ACTION_VIEW_INDEX && freeSpace < overflowViewHeight; j--) {
+                        final MenuItem menuItemToHide = (MenuItem) getChildAt(j).getTag();
+
+                        if (menuItemToHide != null && menuItemToHide.isVisible()) {
+                            freeSpace += getChildAt(j).getMeasuredHeight();
                         }
                     }
 
-                    // lay out an overflow view in the bottom of the bar
-                    overflowView.setVisibility(VISIBLE);
-                    overflowView.layout(leftPos, parentBottom - overflowViewHeight,
-                            rightPos, parentBottom);
+                    firstHiddenIndex = j + 1;
+                    break;
                 }
+            }
+        }
+
+        for (int i = FIRST_ACTION_VIEW_INDEX; i < count; i++) {
+            final View child = getChildAt(i);
+            final MenuItem menuItem = (MenuItem) child.getTag();
+
+            if (menuItem != null && menuItem.isVisible() && i < firstHiddenIndex) {
+                final int height = child.getMeasuredHeight();
+                showChild(child, leftPos, parentTop, rightPos, parentTop + height);
+                parentTop += height;
             } else {
-                child.setVisibility(GONE);
+                hideChild(child);
             }
         }
 
-        if (parentHasFreeSpace) {
-            overflowView.setVisibility(GONE);
+        if (firstHiddenIndex < count) {
+            // lay out an overflow view in the bottom of the bar
+            showChild(overflowView, leftPos, parentBottom - overflowViewHeight,
+                    rightPos, parentBottom);
+        } else {
+            hideChild(overflowView);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void requestLayout() {
+        // When the bar is isolated its size never depends on its children, so there is no need
+        // to ask the whole view tree for a layout pass. The bar is measured and laid out
+        // by itself on the next frame unless the parent is going to lay it out anyway.
+        if (layoutIsolated && getWidth() > 0 && getParent() != null
+                && !getParent().isLayoutRequested()) {
+            forceLayout();
+
+            if (!selfLayoutScheduled) {
+                selfLayoutScheduled = true;
+                ViewCompat.postOnAnimation(this, selfLayout);
+            }
+        } else {
+            super.requestLayout();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(selfLayout);
+        selfLayoutScheduled = false;
+        super.onDetachedFromWindow();
+    }
+
+    public boolean isLayoutIsolated() {
+        return layoutIsolated;
+    }
+
+    /**
+     * When set to <code>true</code> the bar is treated as a fixed size layout boundary: layout
+     * requests coming from its items do not propagate to the parent. The parent must size the bar
+     * independently of its children for this to work.
+     */
+    public void setLayoutIsolated(boolean layoutIsolated) {
+        this.layoutIsolated = layoutIsolated;
+    }
+
+    public boolean isAnimateItemChanges() {
+        return animateItemChanges;
+    }
+
+    /**
+     * When set to <code>true</code> items appearing, disappearing or moving into overflow are
+     * animated. Only translation and alpha are animated, so the bar is laid out once per
+     * change just like without animation.
+     */
+    public void setAnimateItemChanges(boolean animateItemChanges) {
+        this.animateItemChanges = animateItemChanges;
+        final int count = getChildCount();
+
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+
+            if (animateItemChanges) {
+                if (child.getVisibility() == GONE) {
+                    child.setVisibility(INVISIBLE);
+                }
+            } else {
+                ViewCompat.animate(child).cancel();
+                ViewCompat.setAlpha(child, 1f);
+                ViewCompat.setTranslationY(child, 0f);
+
+                if (child.getVisibility() == INVISIBLE) {
+                    child.setVisibility(GONE);
+                }
+
+                child.setTag(R.id.navigation_item_hidden, null);
+                child.setClickable(true);
+            }
         }
     }
 
@@ -133,6 +253,19 @@ public class NavigationHolder extends FrameLayout {
         removeViews(FIRST_ACTION_VIEW_INDEX, getChildCount() - FIRST_ACTION_VIEW_INDEX);
     }
 
+    /**
+     * Put a view of the item with the specified id into selected state and clear selection
+     * of all the other items
+     */
+    public void setSelectedItemId(int selectedItemId) {
+        final int count = getChildCount();
+
+        for (int i = FIRST_ACTION_VIEW_INDEX; i < count; i++) {
+            final View child = getChildAt(i);
+            child.setSelected(selectedItemId != NO_ID && child.getId() == selectedItemId);
+        }
+    }
+
     public ColorStateList getIconColor() {
         return iconColor;
     }
@@ -156,13 +289,97 @@ public class NavigationHolder extends FrameLayout {
         RippleDrawable.makeFor(overflowView, backgroundColor);
     }
 
+    /**
+     * Specify a listener to receive Overflow button clicks. Action items get their listener
+     * from {@link NavigationItemInflater}.
+     */
+    public void setNavigationClickListener(
+            NavigationItemClickListener.NavigationClickListener navigationClickListener) {
+        overflowView.setOnClickListener(navigationClickListener != null
+                ? new NavigationItemClickListener(navigationClickListener) : null);
+    }
+
     private void init() {
+        animationDuration = getResources().getInteger(android.R.integer.config_shortAnimTime);
         addView(createOverflowView());
         PopupMenu popupMenu = new PopupMenu(getContext(), null);
         Menu menu = popupMenu.getMenu();
         MenuInflater menuInflater = new MenuInflater(getContext());
         menuInflater.inflate(R.menu.overflow, menu);
         menuItemOverflow = menu.findItem(R.id.overflow);
+        overflowView.setTag(menuItemOverflow);
+    }
+
+    /**
+     * Make a child visible at the specified position
+     */
+    private void showChild(View child, int l, int t, int r, int b) {
+        if (!animateItemChanges) {
+            // setVisibility also updates the background drawable even when nothing changes
+            if (child.getVisibility() != VISIBLE) {
+                child.setVisibility(VISIBLE);
+            }
+
+            child.layout(l, t, r, b);
+            return;
+        }
+
+        // a child that has never been laid out yet just appears at its place
+        boolean wasShown = child.getVisibility() == VISIBLE && child.getHeight() > 0
+                && child.getTag(R.id.navigation_item_hidden) == null;
+        float oldTop = child.getTop() + ViewCompat.getTranslationY(child);
+        child.layout(l, t, r, b);
+
+        if (wasShown) {
+            if (oldTop != t) {
+                // keep the child where it was on the screen and slide it to its new place
+                ViewCompat.setTranslationY(child, oldTop - t);
+                ViewCompat.animate(child).translationY(0f).setDuration(animationDuration);
+            }
+        } else {
+            child.setTag(R.id.navigation_item_hidden, null);
+            child.setClickable(true);
+
+            if (child.getVisibility() != VISIBLE) {
+                ViewCompat.setAlpha(child, 0f);
+                child.setVisibility(VISIBLE);
+            }
+
+            ViewCompat.setTranslationY(child, 0f);
+            ViewCompat.animate(child).alpha(1f).setDuration(animationDuration);
+        }
+    }
+
+    /**
+     * Hide a child. When animation is on, a child is faded out in its current position and
+     * becomes {@link #INVISIBLE} rather than {@link #GONE}, so that hiding it does not cause
+     * another layout pass.
+     */
+    private void hideChild(final View child) {
+        if (!animateItemChanges) {
+            if (child.getVisibility() != GONE) {
+                child.setVisibility(GONE);
+            }
+
+            return;
+        }
+
+        if (child.getVisibility() == VISIBLE
+                && child.getTag(R.id.navigation_item_hidden) == null) {
+            // neighbours slide into its place while it fades out, so it must not take clicks
+            child.setTag(R.id.navigation_item_hidden, Boolean.TRUE);
+            child.setClickable(false);
+            ViewCompat.animate(child).alpha(0f).setDuration(animationDuration)
+                    .withEndAction(new Runnable() {
+                        @Override
+                        public void run() {
+                            // child could have been shown again while fading out
+                            if (child.getTag(R.id.navigation_item_hidden) != null) {
+                                child.setVisibility(INVISIBLE);
+                            }
+                        }
+                    });
+        }
     }
 
     private View createOverflowView() {
@@ -172,26 +389,6 @@ public class NavigationHolder extends FrameLayout {
         view.setFocusable(true);
         view.setClickable(true);
 
-        view.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                Activity activity = (Activity) getContext();
-                activity.onOptionsItemSelected(menuItemOverflow);
-
-                View home;
-
-                if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                    home = activity.getWindow().getDecorView().findViewById(android.R.id.home);
-                } else {
-                    home = activity.getWindow().getDecorView().findViewById(R.id.up);
-                }
-
-                if (home != null) {
-                    home.performClick();
-                }
-            }
-        });
-
         ImageView icon = (ImageView) view.findViewById(R.id.navigation_item_icon);
 
         if (icon != null) {
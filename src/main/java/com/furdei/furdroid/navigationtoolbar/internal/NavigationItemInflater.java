@@ -3,6 +3,7 @@ package com.furdei.furdroid.navigationtoolbar.internal;
 import dreamers.graphics.RippleDrawable;
 
 import android.content.res.ColorStateList;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
@@ -40,8 +41,8 @@ public class NavigationItemInflater {
 
     public View inflateView(MenuItem menuItem) {
         View view = layoutInflater.inflate(resId, root, false);
-        root.addView(view);
         view.setVisibility(menuItem.isVisible() ? View.VISIBLE : View.GONE);
+        root.addView(view);
         view.setEnabled(menuItem.isEnabled());
         view.setId(menuItem.getItemId());
         view.setTag(menuItem);
@@ -56,10 +57,21 @@ public class NavigationItemInflater {
             ImageView icon = (ImageView) view.findViewById(R.id.navigation_item_icon);
 
             if (icon != null) {
-                icon.setImageDrawable(new TintedDrawable(menuItem.getIcon(), iconColor));
+                icon.setImageDrawable(new TintedDrawable(newIcon(menuItem), iconColor));
             }
         }
 
         return view;
     }
+
+    /**
+     * Returns a copy of the item icon with its own state. Toolbars bound to the same controller
+     * share menu items, so tinting or pressing the icon in one toolbar must not change it in
+     * the others.
+     */
+    private static Drawable newIcon(MenuItem menuItem) {
+        Drawable icon = menuItem.getIcon();
+        Drawable.ConstantState constantState = icon.getConstantState();
+        return constantState != null ? constantState.newDrawable().mutate() : icon;
+    }
 }
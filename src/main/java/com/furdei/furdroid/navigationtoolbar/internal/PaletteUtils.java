@@ -1,6 +1,7 @@
 package com.furdei.furdroid.navigationtoolbar.internal;
 
 import android.content.res.ColorStateList;
+import android.support.v4.util.LongSparseArray;
 
 /**
  * Helper class to work with color palette
@@ -11,6 +12,29 @@ public class PaletteUtils {
 
     private static final int TRANSPARENT_COLOR_MASK = 0x00FFFFFF;
 
+    private static final LongSparseArray<ColorStateList> pressedColorStates =
+            new LongSparseArray<ColorStateList>();
+
+    /**
+     * Returns a color state list with a color for pressed state and a default one. Lists are
+     * cached, so all the toolbars using the same colors share the same instances.
+     */
+    public static ColorStateList getPressedColorState(int pressedColor, int defaultColor) {
+        long key = ((long) pressedColor << 32) | (defaultColor & 0xFFFFFFFFL);
+        ColorStateList colorState = pressedColorStates.get(key);
+
+        if (colorState == null) {
+            int states[][] = new int[][] {
+                    {android.R.attr.state_pressed},
+                    {}};
+            int colors[] = new int[] {pressedColor, defaultColor};
+            colorState = new ColorStateList(states, colors);
+            pressedColorStates.put(key, colorState);
+        }
+
+        return colorState;
+    }
+
     public static ColorStateList getIconColorState(int primaryColor, int primaryColorDark,
                                                    int accentColor) {
         int states[][] = new int[][] {
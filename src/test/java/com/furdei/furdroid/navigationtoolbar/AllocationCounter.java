@@ -0,0 +1,93 @@
+package com.furdei.furdroid.navigationtoolbar;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures heap allocations of the current thread made by a piece of code
+ *
+ * @author Stepan Furdey
+ */
+public class AllocationCounter {
+
+    private static final int WARM_UP_CALLS = 2000;
+    private static final int MEASURED_CALLS = 2000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Average allocations allowed per call. Steady state hot paths must not allocate at all,
+     * a small fraction of a byte tolerates one-off allocations made by the runtime.
+     */
+    private static final double MAX_BYTES_PER_CALL = 1.0;
+
+    private static final Runnable EMPTY_CALL = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    /**
+     * Returns average number of bytes allocated by a single <code>call</code> after warm up.
+     * The cost of the measurement itself is subtracted. The best of several rounds is taken,
+     * so that a one-off allocation made by the test runtime in the middle of a round does not
+     * count.
+     */
+    public static double allocatedBytesPerCall(Runnable call) {
+        return allocatedBytesPerCall(call, EMPTY_CALL);
+    }
+
+    /**
+     * Same as {@link #allocatedBytesPerCall(Runnable)}, but allocations made by
+     * <code>baseline</code> are subtracted too. Some Robolectric shadows allocate on every call
+     * unlike the framework methods they replace, a baseline calling them keeps the measurement
+     * fair.
+     */
+    public static double allocatedBytesPerCall(Runnable call, Runnable baseline) {
+        double bytesPerCall = Double.MAX_VALUE;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            bytesPerCall = Math.min(bytesPerCall, measure(call) - measure(baseline));
+        }
+
+        return bytesPerCall;
+    }
+
+    /**
+     * Fail if a steady state <code>call</code> allocates
+     */
+    public static void assertAllocationFree(String what, int menuSize, Runnable call) {
+        assertAllocationFree(what, menuSize, call, EMPTY_CALL);
+    }
+
+    /**
+     * Fail if a steady state <code>call</code> allocates more than <code>baseline</code> does
+     */
+    public static void assertAllocationFree(String what, int menuSize, Runnable call,
+                                            Runnable baseline) {
+        double bytesPerCall = allocatedBytesPerCall(call, baseline);
+        assertTrue(what + " allocates " + bytesPerCall + " bytes per call with " + menuSize
+                + " menu items", bytesPerCall < MAX_BYTES_PER_CALL);
+    }
+
+    private static double measure(Runnable call) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_CALLS; i++) {
+            call.run();
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            call.run();
+        }
+
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+        return (double) (after - before) / MEASURED_CALLS;
+    }
+
+}
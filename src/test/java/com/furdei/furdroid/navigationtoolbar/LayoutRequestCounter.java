@@ -0,0 +1,33 @@
+package com.furdei.furdroid.navigationtoolbar;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+/**
+ * Root layout counting layout requests coming from its descendants
+ *
+ * @author Stepan Furdey
+ */
+public class LayoutRequestCounter extends FrameLayout {
+
+    private int layoutRequests;
+
+    public LayoutRequestCounter(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void requestLayout() {
+        layoutRequests++;
+        super.requestLayout();
+    }
+
+    public int getLayoutRequests() {
+        return layoutRequests;
+    }
+
+    public void reset() {
+        layoutRequests = 0;
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.furdei.furdroid.navigationtoolbar;
+
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that layout of {@link NavigationToolbar} does not allocate and that neither layout nor
+ * drawing request another layout pass, whatever the size of the menu is. Drawing is not checked
+ * for allocations because the shadow of {@link android.view.View#draw(Canvas)} allocates for
+ * every view drawn.
+ *
+ * @author Stepan Furdey
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "AndroidManifest.xml", sdk = 21, libraries = "src/test/menus")
+public class NavigationToolbarHotPathTest {
+
+    @Test
+    public void onLayoutDoesNotAllocate() {
+        for (int i = 0; i < ToolbarFixture.MENUS.length; i++) {
+            final ToolbarFixture fixture = new ToolbarFixture(ToolbarFixture.MENUS[i]);
+            int menuSize = ToolbarFixture.MENU_SIZES[i];
+
+            AllocationCounter.assertAllocationFree("NavigationToolbar.onLayout", menuSize,
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            fixture.toolbar.onLayout(true, 0, 0,
+                                    ToolbarFixture.WIDTH, ToolbarFixture.HEIGHT);
+                        }
+                    }, new Runnable() {
+                        @Override
+                        public void run() {
+                            // the shadow looks up application info on every call
+                            fixture.toolbar.getLayoutDirection();
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void onLayoutDoesNotRequestLayout() {
+        for (int i = 0; i < ToolbarFixture.MENUS.length; i++) {
+            ToolbarFixture fixture = new ToolbarFixture(ToolbarFixture.MENUS[i]);
+            int menuSize = ToolbarFixture.MENU_SIZES[i];
+
+            fixture.toolbar.onLayout(true, 0, 0, ToolbarFixture.WIDTH, ToolbarFixture.HEIGHT);
+
+            assertFalse("menu size " + menuSize, fixture.toolbar.isLayoutRequested());
+            assertEquals("menu size " + menuSize, 0, fixture.root.getLayoutRequests());
+        }
+    }
+
+    @Test
+    public void drawDoesNotRequestLayout() {
+        for (int i = 0; i < ToolbarFixture.MENUS.length; i++) {
+            ToolbarFixture fixture = new ToolbarFixture(ToolbarFixture.MENUS[i]);
+            int menuSize = ToolbarFixture.MENU_SIZES[i];
+
+            fixture.toolbar.draw(new Canvas());
+
+            assertFalse("menu size " + menuSize, fixture.toolbar.isLayoutRequested());
+            assertEquals("menu size " + menuSize, 0, fixture.root.getLayoutRequests());
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.furdei.furdroid.navigationtoolbar;
+
+import android.app.Activity;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+
+/**
+ * Navigation toolbar with content and a menu from test resources, measured and laid out inside
+ * a {@link LayoutRequestCounter}. The bar fits less than a dozen of items, so bigger menus have
+ * an overflow button shown. Clicks go to the default listener which calls
+ * {@link Activity#onOptionsItemSelected(MenuItem)} of a {@link CountingActivity}.
+ *
+ * @author Stepan Furdey
+ */
+public class ToolbarFixture {
+
+    public static final int WIDTH = 320;
+    public static final int HEIGHT = 480;
+
+    /**
+     * Test menus of increasing size and their sizes
+     */
+    public static final int[] MENUS = {
+            com.furdei.furdroid.navigationtoolbar.test.R.menu.navigation_test_1,
+            com.furdei.furdroid.navigationtoolbar.test.R.menu.navigation_test_8,
+            com.furdei.furdroid.navigationtoolbar.test.R.menu.navigation_test_32};
+    public static final int[] MENU_SIZES = {1, 8, 32};
+
+    public final CountingActivity activity;
+    public final LayoutRequestCounter root;
+    public final NavigationToolbar toolbar;
+
+    public ToolbarFixture(int menuResId) {
+        this(menuResId, false);
+    }
+
+    public ToolbarFixture(int menuResId, boolean animateItemChanges) {
+        activity = Robolectric.setupActivity(CountingActivity.class);
+        root = new LayoutRequestCounter(activity);
+        toolbar = new NavigationToolbar(activity);
+        toolbar.setAnimateItemChanges(animateItemChanges);
+        toolbar.addView(new FrameLayout(activity));
+        toolbar.setMenuResId(menuResId);
+        root.addView(toolbar);
+
+        // the first pass hides items which don't fit, the second one must find nothing to do
+        layout();
+        layout();
+        root.reset();
+    }
+
+    /**
+     * Measure and lay out the whole tree
+     */
+    public void layout() {
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Returns a view of the first navigation item
+     */
+    public View getFirstItemView() {
+        return ((ViewGroup) toolbar.getNavigationView()).getChildAt(1);
+    }
+
+    /**
+     * Returns a view of the Overflow button
+     */
+    public View getOverflowView() {
+        return ((ViewGroup) toolbar.getNavigationView()).getChildAt(0);
+    }
+
+    /**
+     * Activity counting navigation events delivered by
+     * {@link OptionsMenuNavigationToolbarListener}
+     */
+    public static class CountingActivity extends Activity {
+
+        private int itemsSelected;
+
+        @Override
+        public boolean onOptionsItemSelected(MenuItem item) {
+            itemsSelected++;
+            return true;
+        }
+
+        public int getItemsSelected() {
+            return itemsSelected;
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.furdei.furdroid.navigationtoolbar.internal;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.View;
+
+import com.furdei.furdroid.navigationtoolbar.AllocationCounter;
+import com.furdei.furdroid.navigationtoolbar.ToolbarFixture;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that layout of navigation items and click handling neither allocate nor request
+ * another layout pass, whatever the size of the menu is.
+ *
+ * @author Stepan Furdey
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "AndroidManifest.xml", sdk = 21, libraries = "src/test/menus")
+public class NavigationHolderHotPathTest {
+
+    private static final long COALESCING_INTERVAL = 300;
+
+    private static final Runnable EMPTY_CALL = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    /**
+     * The shadow of {@link SystemClock} allocates on every call, coalescing asks it for time
+     */
+    private static final Runnable UPTIME_CALL = new Runnable() {
+        @Override
+        public void run() {
+            SystemClock.uptimeMillis();
+        }
+    };
+
+    @Test
+    public void onLayoutDoesNotAllocate() {
+        for (int i = 0; i < ToolbarFixture.MENUS.length; i++) {
+            final NavigationHolder holder = getHolder(new ToolbarFixture(ToolbarFixture.MENUS[i]));
+
+            AllocationCounter.assertAllocationFree("NavigationHolder.onLayout",
+                    ToolbarFixture.MENU_SIZES[i], new Runnable() {
+                        @Override
+                        public void run() {
+                            layout(holder);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Showing and hiding the same item in a single pass used to request a new layout on every
+     * pass as soon as the overflow button was shown
+     */
+    @Test
+    public void onLayoutDoesNotRequestLayout() {
+        for (int i = 0; i < ToolbarFixture.MENUS.length; i++) {
+            assertNoLayoutRequests(new ToolbarFixture(ToolbarFixture.MENUS[i]),
+                    ToolbarFixture.MENU_SIZES[i]);
+        }
+    }
+
+    @Test
+    public void onLayoutDoesNotRequestLayoutWithAnimation() {
+        for (int i = 0; i < ToolbarFixture.MENUS.length; i++) {
+            assertNoLayoutRequests(new ToolbarFixture(ToolbarFixture.MENUS[i], true),
+                    ToolbarFixture.MENU_SIZES[i]);
+        }
+    }
+
+    @Test
+    public void overflowIsShownForBigMenus() {
+        int last = ToolbarFixture.MENUS.length - 1;
+        ToolbarFixture fixture = new ToolbarFixture(ToolbarFixture.MENUS[last]);
+        NavigationHolder holder = getHolder(fixture);
+
+        assertEquals(ToolbarFixture.MENU_SIZES[last] + 1, holder.getChildCount());
+        assertEquals(View.VISIBLE, fixture.getOverflowView().getVisibility());
+        assertEquals(View.GONE, holder.getChildAt(holder.getChildCount() - 1).getVisibility());
+    }
+
+    @Test
+    public void onClickDoesNotAllocate() {
+        for (int i = 0; i < ToolbarFixture.MENUS.length; i++) {
+            ToolbarFixture fixture = new ToolbarFixture(ToolbarFixture.MENUS[i]);
+            int menuSize = ToolbarFixture.MENU_SIZES[i];
+
+            assertClickAllocationFree(fixture.getFirstItemView(), menuSize, EMPTY_CALL);
+            assertTrue(fixture.activity.getItemsSelected() > 0);
+
+            // Overflow button also looks for Home/Up view of the activity
+            assertClickAllocationFree(fixture.getOverflowView(), menuSize,
+                    new GetWindowCall(fixture.activity));
+
+            fixture.toolbar.setClickCoalescingInterval(COALESCING_INTERVAL);
+            assertClickAllocationFree(fixture.getFirstItemView(), menuSize, UPTIME_CALL);
+
+            assertEquals("menu size " + menuSize, 0, fixture.root.getLayoutRequests());
+        }
+    }
+
+    @Test
+    public void onClickIsCoalesced() {
+        ToolbarFixture fixture = new ToolbarFixture(ToolbarFixture.MENUS[0]);
+        View itemView = fixture.getFirstItemView();
+        View.OnClickListener clickListener = Shadows.shadowOf(itemView).getOnClickListener();
+        fixture.toolbar.setClickCoalescingInterval(COALESCING_INTERVAL);
+
+        clickListener.onClick(itemView);
+        clickListener.onClick(itemView);
+
+        assertEquals(1, fixture.activity.getItemsSelected());
+    }
+
+    /**
+     * Clicks go through the listener the toolbar has set to the view, so the whole path down to
+     * the activity is checked. Allocations of the <code>baseline</code> are not counted.
+     */
+    private static void assertClickAllocationFree(final View view, int menuSize,
+                                                  Runnable baseline) {
+        final View.OnClickListener clickListener = Shadows.shadowOf(view).getOnClickListener();
+        assertTrue(clickListener instanceof NavigationItemClickListener);
+
+        AllocationCounter.assertAllocationFree("NavigationItemClickListener.onClick", menuSize,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        clickListener.onClick(view);
+                    }
+                }, baseline);
+    }
+
+    private static void assertNoLayoutRequests(ToolbarFixture fixture, int menuSize) {
+        NavigationHolder holder = getHolder(fixture);
+
+        layout(holder);
+
+        assertFalse("menu size " + menuSize, holder.isLayoutRequested());
+        assertEquals("menu size " + menuSize, 0, fixture.root.getLayoutRequests());
+    }
+
+    /**
+     * The shadow of {@link Activity#getWindow()} allocates on every call, Home/Up lookup asks
+     * it for a decor view
+     */
+    private static class GetWindowCall implements Runnable {
+
+        private final Activity activity;
+
+        GetWindowCall(Activity activity) {
+            this.activity = activity;
+        }
+
+        @Override
+        public void run() {
+            activity.getWindow();
+        }
+    }
+
+    private static NavigationHolder getHolder(ToolbarFixture fixture) {
+        return (NavigationHolder) fixture.toolbar.getNavigationView();
+    }
+
+    private static void layout(NavigationHolder holder) {
+        holder.onLayout(true, holder.getLeft(), holder.getTop(),
+                holder.getRight(), holder.getBottom());
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.furdei.furdroid.navigationtoolbar.test;
+
+/**
+ * Resource ids of the test resource library in <code>src/test/menus</code>. The build doesn't
+ * process test resources, so the ids are kept by hand in a range no library resource uses.
+ *
+ * @author Stepan Furdey
+ */
+public final class R {
+
+    public static final class menu {
+        public static final int navigation_test_1 = 0x7f7f0001;
+        public static final int navigation_test_8 = 0x7f7f0002;
+        public static final int navigation_test_32 = 0x7f7f0003;
+    }
+
+}